@@ -5,7 +5,9 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import ru.protei.analytics.ActivityAnalyzer;
 import ru.protei.analytics.CombinatedChangesStat;
 import ru.protei.config.Config;
+import ru.protei.git.HeapBudget;
 import ru.protei.git.RepoChangesReader;
+import ru.protei.report.ReportWriter;
 
 import java.io.IOException;
 
@@ -15,26 +17,47 @@ public class WorkCounter {
 
     public static void main(String[] args) throws Exception {
         var workCounter = new WorkCounter(new Config("/config.properties"));
-        workCounter.analyze(workCounter.readStat());
+        try (var changes = workCounter.readStat()) {
+            workCounter.analyze(changes);
+        }
     }
 
     private CombinatedChangesStat readStat() throws GitAPIException, IOException {
+        var heapBudget = new HeapBudget(config.getHeapBudgetBytes());
         CombinatedChangesStat result = null;
-        for (var repo : config.getRepoNames()) {
-            var reader = new RepoChangesReader(repo, config.getRepositoriesRoot());
-            reader.setPullRequired(config.isPullRequired());
-            var changes = reader.readChanges(config.getAuthors(), config.getFrom(), config.getTo());
-            if (result == null) {
-                result = changes;
-            } else {
-                result = result.combine(changes);
+        try {
+            for (var repo : config.getRepoNames()) {
+                var reader = new RepoChangesReader(repo, config.getRepositoriesRoot());
+                reader.setPullRequired(config.isPullRequired());
+                reader.setHeapBudget(heapBudget);
+                var changes = reader.readChanges(config.getAuthors(), config.getFrom(), config.getTo());
+                if (result == null) {
+                    result = changes;
+                } else {
+                    result = result.combine(changes);
+                }
+            }
+        } catch (GitAPIException | IOException | RuntimeException e) {
+            // уже прочитанные репозитории могут держать временные файлы
+            if (result != null) {
+                try {
+                    result.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
             }
+            throw e;
         }
         return result;
     }
 
-    private void analyze(CombinatedChangesStat changes) {
+    private void analyze(CombinatedChangesStat changes) throws IOException {
         var analyzer = new ActivityAnalyzer(changes);
-        analyzer.linearAnalyze();
+        var analyzed = analyzer.linearAnalyze();
+        try (var reportWriter = ReportWriter.open(config.getReportFile(), config.getReportFormat())) {
+            for (var dailyActivity : analyzed) {
+                reportWriter.write(dailyActivity);
+            }
+        }
     }
 }
@@ -2,15 +2,24 @@ package ru.protei.analytics;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import ru.protei.logging.LogSampler;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityAnalyzer {
+    private static final String UNKNOWN_BRANCH = "unknown";
+    // меньше этого числа изменений параллельный разбор не окупается
+    static final int PARALLEL_THRESHOLD = 100_000;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
     private final CombinatedChangesStat changes;
 
     /**
@@ -26,40 +35,111 @@ public class ActivityAnalyzer {
                 prev.stealActivity(cur, (cur.getTotalScore() + prev.getTotalScore()) / 2);
             }
         }
-        log.info("Linear Analyze Result: \n{}", formatResult(analyzed));
+        // сами дни пишет ReportWriter
+        log.info("Linear Analyze Result: {} days, {} total score", analyzed.size(), totalScore(analyzed));
         return analyzed;
     }
 
     public List<DailyActivity> analyze() {
-        var result = buildEmptyDailyActivities();
-        Map<LocalDate, List<ChangesStat>> dailyChanges = changes.split()
-                .collect(Collectors.toMap(cs -> cs.getFrom().toLocalDate(),
-                        cs -> new ArrayList<>(List.of(cs)), (a, b) -> {
-                    a.addAll(b);
-                    return a;
-                }));
-        for (var dailyActivity : result) {
-            var changesStats = dailyChanges.get(dailyActivity.getDate());
-            if (changesStats != null) {
-                for (var changesStat : changesStats) {
-                    Set<String> branches = changesStat.getBranches();
-                    if (branches.size() == 2) {
-                        branches = branches.stream()
-                                .filter(branch -> !branch.contains("master"))
-                                .collect(Collectors.toSet());
-                    }
-                    if (branches.isEmpty()) {
-                        log.warn("Not Found branches for changes at {}", changesStat.getFrom());
-                    }
-                    String branch = branches.size() == 1 ? branches.iterator().next() : "unknown";
-                    dailyActivity.addActivity(branch, changesStat.getLinesChanged());
+        var from = changes.getFrom().toLocalDate();
+        var to = changes.getTo().toLocalDate();
+        List<ChangesStat> stats = changes.flatten();
+
+        // общий на все части, чтобы в лог попали первые изменения без веток за весь анализ, а не за каждую часть
+        var missingBranches = new LogSampler(log);
+        DailyActivity[] result;
+        if (stats.size() < PARALLEL_THRESHOLD) {
+            result = bucketByDay(stats, from, to, missingBranches);
+        } else {
+            int chunkSize = Math.max(PARALLEL_THRESHOLD, stats.size() / ForkJoinPool.getCommonPoolParallelism() + 1);
+            int chunks = (stats.size() + chunkSize - 1) / chunkSize;
+            List<DailyActivity[]> partial = IntStream.range(0, chunks)
+                    .parallel()
+                    .mapToObj(chunk -> bucketByDay(
+                            stats.subList(chunk * chunkSize, Math.min(stats.size(), (chunk + 1) * chunkSize)), from, to, missingBranches))
+                    .toList();
+            // сливаем по порядку, чтобы порядок веток внутри дня совпадал с последовательным проходом
+            result = partial.get(0);
+            for (int i = 1; i < partial.size(); i++) {
+                for (int day = 0; day < result.length; day++) {
+                    result[day].addActivity(partial.get(i)[day]);
                 }
             }
         }
-        log.info("Analyze Result: \n{}", formatResult(result));
+
+        missingBranches.warnSkipped("Not Found branches for {} more changes");
+
+        var analyzed = new ArrayList<>(Arrays.asList(result));
+        log.info("Analyze Result: {} days, {} total score", analyzed.size(), totalScore(analyzed));
+        if (log.isDebugEnabled()) {
+            log.debug("Analyze Result: \n{}", formatResult(analyzed));
+        }
+        return analyzed;
+    }
+
+    /**
+     * Раскладывает изменения по дням [from, to), индекс дня - смещение в днях от from.
+     * Изменения читаются один раз по порядку, так что {@code stats} может лежать на диске.
+     */
+    static DailyActivity[] bucketByDay(List<ChangesStat> stats, LocalDate from, LocalDate to,
+                                       LogSampler missingBranches) {
+        long fromEpochDay = from.toEpochDay();
+        int days = (int) Math.max(0, to.toEpochDay() - fromEpochDay);
+        var result = new DailyActivity[days];
+        for (int day = 0; day < days; day++) {
+            result[day] = new DailyActivity(from.plusDays(day));
+        }
+        for (var changesStat : stats) {
+            ZonedDateTime time = changesStat.getFrom();
+            // то же, что time.toLocalDate().toEpochDay(), но без создания LocalDate
+            long localSeconds = time.toEpochSecond() + time.getOffset().getTotalSeconds();
+            long day = Math.floorDiv(localSeconds, SECONDS_PER_DAY) - fromEpochDay;
+            if (day < 0 || day >= days) {
+                continue;
+            }
+            String branch = chooseBranch(changesStat);
+            if (branch == null) {
+                missingBranches.warn("Not Found branches for changes at {}", changesStat.getFrom());
+                branch = UNKNOWN_BRANCH;
+            }
+            result[(int) day].addActivity(branch, changesStat.getLinesChanged());
+        }
         return result;
     }
 
+    /**
+     * Ветка, к которой относится изменение. Если изменение есть в двух ветках, одна из которых master,
+     * то считается, что оно сделано во второй.
+     *
+     * @return ветка, {@link #UNKNOWN_BRANCH} если их несколько или null если веток не найдено
+     */
+    private static String chooseBranch(ChangesStat changesStat) {
+        Set<String> branches = changesStat.getBranches();
+        if (branches.isEmpty()) {
+            return null;
+        }
+        if (branches.size() == 1) {
+            return branches.iterator().next();
+        }
+        if (branches.size() == 2) {
+            String found = null;
+            int notMaster = 0;
+            for (String branch : branches) {
+                if (!branch.contains("master")) {
+                    found = branch;
+                    notMaster++;
+                }
+            }
+            if (notMaster == 0) {
+                return null;
+            }
+            if (notMaster == 1) {
+                return found;
+            }
+        }
+        return UNKNOWN_BRANCH;
+    }
+
     private List<DailyActivity> linealDistributeFromWeekend(List<DailyActivity> analyzed) {
         var result = new LinkedList<DailyActivity>();
         boolean isFirst = true;
@@ -84,14 +164,12 @@ public class ActivityAnalyzer {
         return date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
     }
 
-    private List<DailyActivity> buildEmptyDailyActivities() {
-        var from = changes.getFrom().toLocalDate();
-        var to = changes.getTo().toLocalDate();
-        var result = new ArrayList<DailyActivity>();
-        for (var date = from; date.isBefore(to); date = date.plusDays(1)) {
-            result.add(new DailyActivity(date));
+    private static long totalScore(List<DailyActivity> result) {
+        long total = 0;
+        for (var dailyActivity : result) {
+            total += dailyActivity.getTotalScore();
         }
-        return result;
+        return total;
     }
 
     private static String formatResult(List<DailyActivity> result) {
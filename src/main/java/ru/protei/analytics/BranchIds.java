@@ -0,0 +1,48 @@
+package ru.protei.analytics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сквозная нумерация веток, чтобы в {@link DailyActivity} хранить int вместо строк.
+ */
+final class BranchIds {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int size = 0;
+
+    private BranchIds() {
+    }
+
+    static int idOf(String branch) {
+        Integer id = IDS.get(branch);
+        return id != null ? id : register(branch);
+    }
+
+    /**
+     * Номер ветки без регистрации новой, -1 если ветка еще не встречалась.
+     */
+    static int find(String branch) {
+        Integer id = IDS.get(branch);
+        return id != null ? id : -1;
+    }
+
+    static String nameOf(int id) {
+        return names[id];
+    }
+
+    private static synchronized int register(String branch) {
+        Integer id = IDS.get(branch);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        // имя записывается до публикации id, чтобы nameOf всегда его видел
+        names[size] = branch;
+        IDS.put(branch, size);
+        return size++;
+    }
+}
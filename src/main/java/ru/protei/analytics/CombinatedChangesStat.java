@@ -1,17 +1,18 @@
 package ru.protei.analytics;
 
+import com.google.common.collect.Iterators;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.ZonedDateTime;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Stream;
 
 @Getter
 @ToString
-public class CombinatedChangesStat implements ChangesStat {
+public class CombinatedChangesStat implements ChangesStat, Closeable {
     private final List<ChangesStat> changesStats;
     
     public CombinatedChangesStat(List<ChangesStat> changesStats) {
@@ -73,10 +74,97 @@ public class CombinatedChangesStat implements ChangesStat {
                 });
     }
 
+    /**
+     * Все атомарные изменения. Если вложенных комбинаций нет, возвращается сам список без копирования.
+     */
+    public List<ChangesStat> flatten() {
+        for (var stat : changesStats) {
+            if (stat instanceof CombinatedChangesStat) {
+                return split().toList();
+            }
+        }
+        return changesStats;
+    }
+
+    /**
+     * Объединение без копирования: списки изменений могут не помещаться в память целиком.
+     */
     public CombinatedChangesStat combine(CombinatedChangesStat other) {
-        var resultStats = new HashSet<ChangesStat>();
-        resultStats.addAll(changesStats);
-        resultStats.addAll(other.changesStats);
-        return new CombinatedChangesStat(List.copyOf(resultStats));
+        if (other == this) {
+            return this;
+        }
+        return new CombinatedChangesStat(new ConcatenatedList(changesStats, other.changesStats));
+    }
+
+    /**
+     * Освобождает списки изменений, которые держат временные файлы.
+     */
+    @Override
+    public void close() throws IOException {
+        close(changesStats);
+    }
+
+    private static void close(List<ChangesStat> changesStats) throws IOException {
+        if (changesStats instanceof Closeable closeable) {
+            closeable.close();
+            return;
+        }
+        for (var stat : changesStats) {
+            if (stat instanceof CombinatedChangesStat combinated) {
+                combinated.close();
+            }
+        }
+    }
+
+    private static class ConcatenatedList extends AbstractList<ChangesStat> implements Closeable {
+        private final List<ChangesStat> first;
+        private final List<ChangesStat> second;
+
+        ConcatenatedList(List<ChangesStat> first, List<ChangesStat> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public ChangesStat get(int index) {
+            return index < first.size() ? first.get(index) : second.get(index - first.size());
+        }
+
+        @Override
+        public int size() {
+            return first.size() + second.size();
+        }
+
+        @Override
+        public Iterator<ChangesStat> iterator() {
+            return Iterators.concat(first.iterator(), second.iterator());
+        }
+
+        @Override
+        public List<ChangesStat> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, size());
+            int split = first.size();
+            if (toIndex <= split) {
+                return first.subList(fromIndex, toIndex);
+            }
+            if (fromIndex >= split) {
+                return second.subList(fromIndex - split, toIndex - split);
+            }
+            return new ConcatenatedList(first.subList(fromIndex, split), second.subList(0, toIndex - split));
+        }
+
+        @Override
+        public Spliterator<ChangesStat> spliterator() {
+            return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                CombinatedChangesStat.close(first);
+            } finally {
+                CombinatedChangesStat.close(second);
+            }
+        }
     }
 }
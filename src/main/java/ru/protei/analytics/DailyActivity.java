@@ -5,69 +5,171 @@ import lombok.Getter;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class DailyActivity {
     private static final int MIN_WORKING_HOURS_PER_BRANCH = 1;
     private static final int TARGET_WORKING_HOURS_PER_DAY = 8;
 
-    private final Map<String, Integer> activityPerBranch;
+    // активность по веткам: branchIds[i] (см. BranchIds) -> scores[i], веток в день единицы, поэтому линейный поиск
+    private int[] branchIds;
+    private int[] scores;
+    private int branchesCount;
     private @Getter int totalScore;
     private final @Getter LocalDate date;
+    // результат getTimeActivityPerBranch, сбрасывается при любом изменении активности
+    private Map<String, String> timeActivityPerBranch;
 
     public DailyActivity(LocalDate date) {
-        this.activityPerBranch = new HashMap<>();
+        this.branchIds = new int[4];
+        this.scores = new int[4];
+        this.branchesCount = 0;
         this.totalScore = 0;
         this.date = date;
     }
 
     public void addActivity(String branch, int score) {
         // TODO: должно быть не более 8 веток в день
-        activityPerBranch.put(branch, activityPerBranch.getOrDefault(branch, 0) + score);
+        addActivity(BranchIds.idOf(branch), score);
+    }
+
+    /**
+     * Добавляет всю активность другого дня, ветки добавляются в порядке их появления в {@code other}.
+     */
+    public void addActivity(DailyActivity other) {
+        for (int i = 0; i < other.branchesCount; i++) {
+            addActivity(other.branchIds[i], other.scores[i]);
+        }
+    }
+
+    private void addActivity(int id, int score) {
+        int index = indexOf(id);
+        if (index < 0) {
+            if (branchesCount == branchIds.length) {
+                branchIds = Arrays.copyOf(branchIds, branchesCount * 2);
+                scores = Arrays.copyOf(scores, branchesCount * 2);
+            }
+            index = branchesCount++;
+            branchIds[index] = id;
+            scores[index] = 0;
+        }
+        scores[index] += score;
         totalScore += score;
+        timeActivityPerBranch = null;
     }
 
     public int getActivity(String branch) {
-        return activityPerBranch.getOrDefault(branch, 0);
+        int index = indexOf(BranchIds.find(branch));
+        return index < 0 ? 0 : scores[index];
     }
 
     public float getRelativeActivity(String branch) {
         return Math.round((float) getActivity(branch) / totalScore * 100) / 100f;
     }
 
+    /**
+     * Распределение {@value TARGET_WORKING_HOURS_PER_DAY} часов между ветками методом наибольших остатков.
+     * Каждой ветке достается не меньше {@value MIN_WORKING_HOURS_PER_BRANCH} ч, недостающие часы
+     * забираются у веток с наибольшей активностью.
+     */
     public Map<String, String> getTimeActivityPerBranch() {
-        Map<String, Float> relativeActivity = getBranches().stream()
-                .collect(Collectors.toMap(Function.identity(), this::getRelativeActivity));
-        if (relativeActivity.isEmpty()) {
+        if (timeActivityPerBranch == null) {
+            timeActivityPerBranch = computeTimeActivityPerBranch();
+        }
+        return timeActivityPerBranch;
+    }
+
+    private Map<String, String> computeTimeActivityPerBranch() {
+        int n = branchesCount;
+        if (n == 0) {
             return Collections.emptyMap();
         }
-        Map<String, Integer> hoursActivity = relativeActivity.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey,
-                        e -> Math.max(
-                                Math.round(e.getValue() * TARGET_WORKING_HOURS_PER_DAY),
-                                MIN_WORKING_HOURS_PER_BRANCH)));
-
-        int totalWorkingHours = hoursActivity.values().stream().mapToInt(val -> val).sum();
-        while (totalWorkingHours != TARGET_WORKING_HOURS_PER_DAY) {
-            int diff = totalWorkingHours - TARGET_WORKING_HOURS_PER_DAY;
-            if (diff > 0) {
-                String branchToSteal = relativeActivity.entrySet().stream()
-                        .filter(entry -> hoursActivity.get(entry.getKey()) > MIN_WORKING_HOURS_PER_BRANCH)
-                        .max(Comparator.comparingDouble(Map.Entry::getValue))
-                        .orElseThrow().getKey();
-                hoursActivity.put(branchToSteal, hoursActivity.get(branchToSteal) - MIN_WORKING_HOURS_PER_BRANCH);
-                totalWorkingHours--;
-            } else {
-                String branchToSteal = relativeActivity.entrySet().stream()
-                        .min(Comparator.comparingDouble(Map.Entry::getValue))
-                        .orElseThrow().getKey();
-                hoursActivity.put(branchToSteal, hoursActivity.get(branchToSteal) + MIN_WORKING_HOURS_PER_BRANCH);
-                totalWorkingHours++;
+
+        int[] hours = new int[n];
+        long[] remainders = new long[n];
+        int assignedHours = 0;
+        if (totalScore > 0) {
+            for (int i = 0; i < n; i++) {
+                long quota = (long) scores[i] * TARGET_WORKING_HOURS_PER_DAY;
+                hours[i] = (int) (quota / totalScore);
+                remainders[i] = quota % totalScore;
+                assignedHours += hours[i];
+            }
+        }
+
+        // оставшиеся часы уходят веткам с наибольшими дробными частями; при нулевой активности
+        // (корневые, бинарные, пустые коммиты) остатков нет, и часы раздаются по кругу
+        int[] byRemainder = sortedIndicesDesc(remainders, n);
+        for (int i = 0; assignedHours < TARGET_WORKING_HOURS_PER_DAY; i = (i + 1) % n) {
+            hours[byRemainder[i]]++;
+            assignedHours++;
+        }
+
+        int excess = 0;
+        for (int i = 0; i < n; i++) {
+            if (hours[i] < MIN_WORKING_HOURS_PER_BRANCH) {
+                excess += MIN_WORKING_HOURS_PER_BRANCH - hours[i];
+                hours[i] = MIN_WORKING_HOURS_PER_BRANCH;
+            }
+        }
+
+        // минимум оплачивается ветками с наибольшей активностью
+        if (excess > 0) {
+            long[] activity = new long[n];
+            for (int i = 0; i < n; i++) {
+                activity[i] = scores[i];
+            }
+            int[] byActivity = sortedIndicesDesc(activity, n);
+            for (int i = 0; i < n && excess > 0; i++) {
+                int branch = byActivity[i];
+                int stolen = Math.min(hours[branch] - MIN_WORKING_HOURS_PER_BRANCH, excess);
+                hours[branch] -= stolen;
+                excess -= stolen;
             }
         }
 
-        return hoursActivity.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, entry -> String.format("%dh", entry.getValue())));
+        Map<String, String> result = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            result.put(BranchIds.nameOf(branchIds[i]), String.format("%dh", hours[i]));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Индексы ключей по убыванию, при равенстве сохраняется порядок добавления.
+     */
+    private static int[] sortedIndicesDesc(long[] keys, int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = i;
+            while (j > 0 && keys[result[j - 1]] < keys[i]) {
+                result[j] = result[j - 1];
+                j--;
+            }
+            result[j] = i;
+        }
+        return result;
+    }
+
+    private int indexOf(int branchId) {
+        for (int i = 0; i < branchesCount; i++) {
+            if (branchIds[i] == branchId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeBranch(String branch) {
+        int index = indexOf(BranchIds.find(branch));
+        if (index < 0) {
+            return;
+        }
+        totalScore -= scores[index];
+        // хвост сдвигается, а не переносится в освободившийся слот, чтобы сохранить порядок добавления
+        branchesCount--;
+        System.arraycopy(branchIds, index + 1, branchIds, index, branchesCount - index);
+        System.arraycopy(scores, index + 1, scores, index, branchesCount - index);
+        timeActivityPerBranch = null;
     }
 
     public static int findClosestTimeSlot(List<Integer> timeSlots, float activityFraction, int remainingMinutes) {
@@ -76,7 +178,11 @@ public class DailyActivity {
     }
 
     public Collection<String> getBranches() {
-        return activityPerBranch.keySet();
+        List<String> result = new ArrayList<>(branchesCount);
+        for (int i = 0; i < branchesCount; i++) {
+            result.add(BranchIds.nameOf(branchIds[i]));
+        }
+        return result;
     }
 
     public void stealActivity(DailyActivity other, int totalToSteal) {
@@ -99,7 +205,7 @@ public class DailyActivity {
 
         if (totalToSteal == stolenActivity) {
             if (otherTopActivity == stolenActivity) {
-                other.activityPerBranch.remove(otherTopActivityBranch);
+                other.removeBranch(otherTopActivityBranch);
             }
         } else {
             stealActivity(other, totalToSteal - stolenActivity);
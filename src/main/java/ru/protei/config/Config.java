@@ -1,6 +1,7 @@
 package ru.protei.config;
 
 import lombok.Getter;
+import ru.protei.report.ReportFormat;
 
 import javax.naming.ConfigurationException;
 import java.io.IOException;
@@ -29,6 +30,9 @@ public class Config {
     private final List<String> authors;
     private final ZonedDateTime from;
     private final ZonedDateTime to;
+    private final long heapBudgetBytes;
+    private final Path reportFile;
+    private final ReportFormat reportFormat;
 
     public Config(String configFilePath) throws IOException, ConfigurationException {
         Properties properties = new Properties();
@@ -46,6 +50,12 @@ public class Config {
 
             this.from = getRequiredDateTime(properties, "analyze.from");
             this.to = getRequiredDateTime(properties, "analyze.to");
+
+            this.heapBudgetBytes = getHeapBudgetBytes(properties, "memory.heap_budget_mb");
+
+            String reportFile = properties.getProperty("report.file", "").trim();
+            this.reportFile = reportFile.isEmpty() ? null : Path.of(reportFile);
+            this.reportFormat = getReportFormat(properties, "report.format");
         }
     }
 
@@ -62,6 +72,29 @@ public class Config {
         return new ArrayList<>(Arrays.stream(property.split(",")).map(String::trim).toList());
     }
 
+    private static long getHeapBudgetBytes(Properties properties, String propertyName) throws ConfigurationException {
+        String property = properties.getProperty(propertyName, "0").trim();
+        long megabytes;
+        try {
+            megabytes = Long.parseLong(property);
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException(String.format("Property %s is not a number: %s", propertyName, property));
+        }
+        if (megabytes < 0 || megabytes > Long.MAX_VALUE / (1024 * 1024)) {
+            throw new ConfigurationException(String.format("Property %s is out of range: %s", propertyName, property));
+        }
+        return megabytes * 1024 * 1024;
+    }
+
+    private static ReportFormat getReportFormat(Properties properties, String propertyName) throws ConfigurationException {
+        String property = properties.getProperty(propertyName, ReportFormat.TEXT.name()).trim();
+        try {
+            return ReportFormat.valueOf(property.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(String.format("Property %s has unknown value %s", propertyName, property));
+        }
+    }
+
     private static ZonedDateTime getRequiredDateTime(Properties properties, String propertyName) throws ConfigurationException {
         String property = getRequiredProperty(properties, propertyName);
         try {
@@ -0,0 +1,132 @@
+package ru.protei.git;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Множества коммитов в виде битовых масок по номерам коммитов из [0, commitsCount).
+ * Маски лежат в памяти, пока позволяет {@link HeapBudget}, остальные отображаются на временный файл.
+ */
+@Slf4j
+class CommitBitSets implements Closeable {
+    private final HeapBudget heapBudget;
+    private final int words;
+    private FileChannel spillChannel;
+    private long spillSize = 0;
+    // освобожденные области файла, переиспользуются следующими масками
+    private final Deque<LongBuffer> freeRegions = new ArrayDeque<>();
+    private long reservedBytes = 0;
+
+    CommitBitSets(int commitsCount, HeapBudget heapBudget) {
+        this.heapBudget = heapBudget;
+        this.words = (commitsCount + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    LongBuffer allocate() throws IOException {
+        long bytes = (long) words * Long.BYTES;
+        if (heapBudget.tryReserve(bytes)) {
+            reservedBytes += bytes;
+            return LongBuffer.wrap(new long[words]);
+        }
+        LongBuffer region = freeRegions.poll();
+        if (region != null) {
+            clear(region);
+            return region;
+        }
+        if (spillChannel == null) {
+            var file = Files.createTempFile("work-counter-", ".branches");
+            spillChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            log.info("Heap budget {} exceeded, spilling branch commits to {}", heapBudget, file);
+        }
+        ByteBuffer mapped = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillSize, bytes);
+        spillSize += bytes;
+        return mapped.asLongBuffer();
+    }
+
+    void release(LongBuffer bits) {
+        if (bits.hasArray()) {
+            long bytes = (long) bits.capacity() * Long.BYTES;
+            reservedBytes -= bytes;
+            heapBudget.release(bytes);
+        } else {
+            freeRegions.push(bits);
+        }
+    }
+
+    LongBuffer copy(LongBuffer bits) throws IOException {
+        LongBuffer result = allocate();
+        for (int i = 0; i < words; i++) {
+            result.put(i, bits.get(i));
+        }
+        return result;
+    }
+
+    static void set(LongBuffer bits, int index) {
+        int word = index / Long.SIZE;
+        bits.put(word, bits.get(word) | (1L << index));
+    }
+
+    static boolean get(LongBuffer bits, int index) {
+        return (bits.get(index / Long.SIZE) & (1L << index)) != 0;
+    }
+
+    static void clear(LongBuffer bits) {
+        for (int i = 0; i < bits.capacity(); i++) {
+            bits.put(i, 0);
+        }
+    }
+
+    /**
+     * {@code bits &= ~other}
+     */
+    static void andNot(LongBuffer bits, LongBuffer other) {
+        for (int i = 0; i < bits.capacity(); i++) {
+            bits.put(i, bits.get(i) & ~other.get(i));
+        }
+    }
+
+    /**
+     * Следующий установленный бит начиная с {@code fromIndex} или -1.
+     */
+    static int nextSetBit(LongBuffer bits, int fromIndex) {
+        int word = fromIndex / Long.SIZE;
+        if (word >= bits.capacity()) {
+            return -1;
+        }
+        long current = bits.get(word) & (-1L << fromIndex);
+        while (current == 0) {
+            if (++word == bits.capacity()) {
+                return -1;
+            }
+            current = bits.get(word);
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(current);
+    }
+
+    /**
+     * Размер временного файла, 0 если маски в него не сбрасывались.
+     */
+    long getSpillSize() {
+        return spillSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        heapBudget.release(reservedBytes);
+        reservedBytes = 0;
+        freeRegions.clear();
+        if (spillChannel != null) {
+            spillChannel.close();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package ru.protei.git;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import ru.protei.analytics.ChangesStat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * Список статистик коммитов, ограниченный {@link HeapBudget}.
+ * Пока бюджет позволяет, статистики лежат в памяти, после этого все новые дописываются
+ * компактными записями во временный файл и читаются обратно последовательно через {@link ByteBuffer}.
+ * Итерироваться лучше через {@link #iterator()}, {@link #get(int)} читает с диска каждую запись отдельно.
+ */
+@Slf4j
+class CommitStatsStore extends AbstractList<ChangesStat> implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // примерный размер CommitChangesStat без путей файлов: сам объект, время, id коммита и множества
+    private static final int STAT_BASE_SIZE = 256;
+    private static final int FILE_PATH_BASE_SIZE = 64;
+    private static final int SET_BASE_SIZE = 64;
+
+    private final HeapBudget heapBudget;
+    private final List<ChangesStat> inMemory = new ArrayList<>();
+    private long reservedBytes = 0;
+
+    // повторяющиеся значения пишутся в файл номерами
+    private final List<Set<String>> sets = new ArrayList<>();
+    private final Map<Set<String>, Integer> setIds = new HashMap<>();
+    private final List<ZoneId> zones = new ArrayList<>();
+    private final Map<ZoneId, Integer> zoneIds = new HashMap<>();
+
+    private FileChannel spillChannel;
+    private ByteBuffer writeBuffer;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    // offsets[i] - начало i-й записи в файле, offsets[spilledCount] - конец последней
+    private long[] offsets = new long[1024];
+    private int spilledCount = 0;
+
+    CommitStatsStore(HeapBudget heapBudget) {
+        this.heapBudget = heapBudget;
+        reserve((long) offsets.length * Long.BYTES);
+    }
+
+    @Override
+    public boolean add(ChangesStat changesStat) {
+        CommitChangesStat stat = (CommitChangesStat) changesStat;
+        long size = estimateSize(stat);
+        if (spillChannel == null && heapBudget.tryReserve(size)) {
+            reservedBytes += size;
+            inMemory.add(stat);
+        } else {
+            try {
+                spill(stat);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public ChangesStat get(int index) {
+        Objects.checkIndex(index, size());
+        if (index < inMemory.size()) {
+            return inMemory.get(index);
+        }
+        int spilledIndex = index - inMemory.size();
+        long start = offsets[spilledIndex];
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[spilledIndex + 1] - start));
+        try {
+            flush();
+            readFully(buffer, start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return decode(buffer, 0);
+    }
+
+    @Override
+    public int size() {
+        return inMemory.size() + spilledCount;
+    }
+
+    @Override
+    public Iterator<ChangesStat> iterator() {
+        return iterator(0, size());
+    }
+
+    @Override
+    public List<ChangesStat> subList(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size());
+        return new AbstractList<>() {
+            @Override
+            public ChangesStat get(int index) {
+                Objects.checkIndex(index, size());
+                return CommitStatsStore.this.get(fromIndex + index);
+            }
+
+            @Override
+            public int size() {
+                return toIndex - fromIndex;
+            }
+
+            @Override
+            public Iterator<ChangesStat> iterator() {
+                return CommitStatsStore.this.iterator(fromIndex, toIndex);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<ChangesStat> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED);
+    }
+
+    /**
+     * Удаляет временный файл и возвращает занятое в {@link HeapBudget}, после этого список пуст.
+     */
+    @Override
+    public void close() throws IOException {
+        inMemory.clear();
+        heapBudget.release(reservedBytes);
+        reservedBytes = 0;
+        spilledCount = 0;
+        writeBuffer = null;
+        if (spillChannel != null) {
+            spillChannel.close();
+            spillChannel = null;
+        }
+        modCount++;
+    }
+
+    private Iterator<ChangesStat> iterator(int fromIndex, int toIndex) {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Iterator<>() {
+            private int index = fromIndex;
+            // окно файла [windowStart, windowStart + window.limit())
+            private ByteBuffer window;
+            private long windowStart;
+
+            @Override
+            public boolean hasNext() {
+                return index < toIndex;
+            }
+
+            @Override
+            public ChangesStat next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (index < inMemory.size()) {
+                    return inMemory.get(index++);
+                }
+                int spilledIndex = index++ - inMemory.size();
+                long start = offsets[spilledIndex];
+                long end = offsets[spilledIndex + 1];
+                if (window == null || start < windowStart || end > windowStart + window.limit()) {
+                    fillWindow(start, (int) (end - start));
+                }
+                return decode(window, (int) (start - windowStart));
+            }
+
+            private void fillWindow(long start, int minLength) {
+                long remaining = offsets[spilledCount] - start;
+                int capacity = Math.max(BUFFER_SIZE, minLength);
+                if (window == null || window.capacity() < capacity) {
+                    window = ByteBuffer.allocateDirect(capacity);
+                }
+                window.clear();
+                window.limit((int) Math.min(window.capacity(), remaining));
+                try {
+                    readFully(window, start);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                window.flip();
+                windowStart = start;
+            }
+        };
+    }
+
+    private void spill(CommitChangesStat stat) throws IOException {
+        if (spillChannel == null) {
+            var file = Files.createTempFile("work-counter-", ".stats");
+            spillChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            log.info("Heap budget {} exceeded after {} commits, spilling to {}", heapBudget, inMemory.size(), file);
+        }
+
+        recordBytes.reset();
+        record.writeLong(stat.getTime().toInstant().toEpochMilli());
+        record.writeInt(zoneIds.computeIfAbsent(stat.getTime().getZone(), zone -> {
+            zones.add(zone);
+            return zones.size() - 1;
+        }));
+        record.writeInt(stat.getLinesChanged());
+        byte[] commitId = new byte[Constants.OBJECT_ID_LENGTH];
+        stat.getCommitId().copyRawTo(commitId, 0);
+        record.write(commitId);
+        record.writeInt(setId(stat.getAuthors()));
+        record.writeInt(setId(stat.getBranches()));
+        record.writeInt(stat.getChangedFiles().size());
+        for (String file : stat.getChangedFiles()) {
+            byte[] bytes = file.getBytes(StandardCharsets.UTF_8);
+            record.writeInt(bytes.length);
+            record.write(bytes);
+        }
+
+        if (writeBuffer.remaining() < recordBytes.size()) {
+            flush();
+        }
+        if (writeBuffer.remaining() < recordBytes.size()) {
+            writeFully(ByteBuffer.wrap(recordBytes.toByteArray()), offsets[spilledCount]);
+        } else {
+            writeBuffer.put(recordBytes.toByteArray());
+        }
+
+        if (spilledCount + 1 == offsets.length) {
+            reserve((long) offsets.length * Long.BYTES);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[spilledCount + 1] = offsets[spilledCount] + recordBytes.size();
+        spilledCount++;
+    }
+
+    private ChangesStat decode(ByteBuffer buffer, int position) {
+        var time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong(position)),
+                zones.get(buffer.getInt(position + 8)));
+        int linesChanged = buffer.getInt(position + 12);
+        byte[] commitId = new byte[Constants.OBJECT_ID_LENGTH];
+        buffer.get(position + 16, commitId);
+        position += 16 + commitId.length;
+        Set<String> authors = sets.get(buffer.getInt(position));
+        Set<String> branches = sets.get(buffer.getInt(position + 4));
+        int filesCount = buffer.getInt(position + 8);
+        position += 12;
+        Set<String> changedFiles = new HashSet<>(filesCount * 2);
+        for (int i = 0; i < filesCount; i++) {
+            byte[] bytes = new byte[buffer.getInt(position)];
+            buffer.get(position + 4, bytes);
+            position += 4 + bytes.length;
+            changedFiles.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return new CommitChangesStat(time, linesChanged, changedFiles, authors, branches, ObjectId.fromRaw(commitId));
+    }
+
+    private int setId(Set<String> set) {
+        return setIds.computeIfAbsent(Set.copyOf(set), s -> {
+            long size = SET_BASE_SIZE;
+            for (String value : s) {
+                size += FILE_PATH_BASE_SIZE + 2L * value.length();
+            }
+            reserve(size);
+            sets.add(s);
+            return sets.size() - 1;
+        });
+    }
+
+    private synchronized void flush() throws IOException {
+        if (writeBuffer == null || writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        // в буфере лежат последние записи, перед ними в файле все предыдущие
+        writeFully(writeBuffer, offsets[spilledCount] - writeBuffer.remaining());
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += spillChannel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = spillChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of spill file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Учет служебных данных, которые остаются в памяти и при сбросе на диск.
+     */
+    private void reserve(long bytes) {
+        heapBudget.reserve(bytes);
+        reservedBytes += bytes;
+    }
+
+    private static long estimateSize(CommitChangesStat stat) {
+        long size = STAT_BASE_SIZE;
+        for (String file : stat.getChangedFiles()) {
+            size += FILE_PATH_BASE_SIZE + 2L * file.length();
+        }
+        return size;
+    }
+}
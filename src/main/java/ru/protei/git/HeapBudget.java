@@ -0,0 +1,65 @@
+package ru.protei.git;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий на все репозитории лимит памяти под прочитанные данные.
+ * Все, что в него не влезает, сбрасывается во временные файлы.
+ * Размеры объектов оцениваются примерно, а память JGit (обход всех коммитов репозитория, кэши)
+ * не учитывается, поэтому это не жесткое ограничение кучи.
+ */
+public class HeapBudget {
+    public static final HeapBudget UNLIMITED = new HeapBudget(0);
+
+    private final long limitBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * @param limitBytes лимит в байтах, 0 или меньше - без ограничения
+     */
+    public HeapBudget(long limitBytes) {
+        this.limitBytes = limitBytes;
+    }
+
+    public boolean isUnlimited() {
+        return limitBytes <= 0;
+    }
+
+    /**
+     * Резервирует {@code bytes} байт, если они есть в бюджете.
+     */
+    public boolean tryReserve(long bytes) {
+        if (isUnlimited()) {
+            return true;
+        }
+        long used;
+        do {
+            used = usedBytes.get();
+            if (used + bytes > limitBytes) {
+                return false;
+            }
+        } while (!usedBytes.compareAndSet(used, used + bytes));
+        return true;
+    }
+
+    /**
+     * Учитывает {@code bytes} байт данных, которые нельзя сбросить на диск: бюджет может оказаться превышен,
+     * зато все последующие данные сразу уйдут во временные файлы.
+     */
+    public void reserve(long bytes) {
+        if (!isUnlimited()) {
+            usedBytes.addAndGet(bytes);
+        }
+    }
+
+    public void release(long bytes) {
+        if (!isUnlimited()) {
+            usedBytes.addAndGet(-bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isUnlimited() ? "unlimited" : String.format("%d/%d bytes", usedBytes.get(), limitBytes);
+    }
+}
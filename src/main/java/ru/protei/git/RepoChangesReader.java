@@ -19,20 +19,25 @@ import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 import ru.protei.analytics.ChangesStat;
 import ru.protei.analytics.CombinatedChangesStat;
+import ru.protei.logging.LogSampler;
 
 import java.io.IOException;
+import java.nio.LongBuffer;
 import java.nio.file.Path;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class RepoChangesReader {
+    // примерный размер выбранного коммита без тела: RevCommit, его номер в findBranches и ссылки в списках
+    private static final int SELECTED_COMMIT_BASE_SIZE = 200;
+
     private final Repository repository;
     private final String repoName;
     private boolean pullRequired = false;
+    private HeapBudget heapBudget = HeapBudget.UNLIMITED;
 
     public RepoChangesReader(@NonNull String repoName, Path repositoriesRoot) throws IOException {
         this.repoName = repoName;
@@ -52,6 +57,10 @@ public class RepoChangesReader {
         this.pullRequired = pullRequired;
     }
 
+    public void setHeapBudget(@NonNull HeapBudget heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
     public CombinatedChangesStat readChanges(@NonNull Collection<String> authors,
                                              @NonNull ZonedDateTime from,
                                              ZonedDateTime to) throws GitAPIException, IOException {
@@ -64,7 +73,9 @@ public class RepoChangesReader {
 
             List<ChangesStat> commits = getCommitsByDate(git, authors, from, to);
             log.info("Found {} commits in repository {}", commits.size(), repoName);
-            log.debug("Commits: {}", commits);
+            if (log.isDebugEnabled() && !commits.isEmpty()) {
+                log.debug("First commits: {}", commits.subList(0, Math.min(commits.size(), LogSampler.DEFAULT_LIMIT)));
+            }
             return new CombinatedChangesStat(commits);
         }
     }
@@ -74,6 +85,8 @@ public class RepoChangesReader {
             @NonNull ZonedDateTime from, ZonedDateTime to
     ) throws IOException, GitAPIException {
         List<RevCommit> selectedCommits = new ArrayList<>();
+        // выбранные коммиты держатся в памяти до конца чтения и на диск не сбрасываются
+        long selectedCommitsBytes = 0;
 
         try (RevWalk walk = new RevWalk(repository)) {
             // Конвертация ZonedDateTime в UNIX timestamp
@@ -90,19 +103,25 @@ public class RepoChangesReader {
                 if (commitTime >= startTime && commitTime <= endTime
                         && authors.contains(rev.getAuthorIdent().getName())) {
                     selectedCommits.add(rev);
+                    long size = SELECTED_COMMIT_BASE_SIZE + (rev.getRawBuffer() == null ? 0 : rev.getRawBuffer().length);
+                    heapBudget.reserve(size);
+                    selectedCommitsBytes += size;
                 }
             }
 
-            var result = selectedCommits.stream()
-                    .map(commit -> getCommitStat(walk, commit))
-                    .collect(Collectors.toList());
-            fillBranches(result);
-            return new ArrayList<>(result);
+            List<Set<String>> branches = findBranches(selectedCommits);
+            var result = new CommitStatsStore(heapBudget);
+            for (int i = 0; i < selectedCommits.size(); i++) {
+                result.add(getCommitStat(walk, selectedCommits.get(i), branches.get(i)));
+            }
+            return result;
+        } finally {
+            heapBudget.release(selectedCommitsBytes);
         }
     }
 
     @SneakyThrows
-    private CommitChangesStat getCommitStat(RevWalk revWalk, RevCommit commit) {
+    private CommitChangesStat getCommitStat(RevWalk revWalk, RevCommit commit, Set<String> branches) {
         List<DiffEntry> commitChanges = getCommitChanges(revWalk, commit);
         Set<String> authors = Set.of(commit.getAuthorIdent().getName());
         Set<String> changedFiles = commitChanges.stream()
@@ -124,79 +143,122 @@ public class RepoChangesReader {
         }
 
         return new CommitChangesStat(commitDateTime, changesCount,
-                changedFiles, authors, new HashSet<>(), commit.getId());
+                changedFiles, authors, branches, commit.getId());
     }
 
-    public void fillBranches(List<CommitChangesStat> commitChangesStatList) throws IOException, GitAPIException {
+    /**
+     * Ветки для каждого коммита из {@code commitIds}, в том же порядке.
+     * Множества коммитов веток хранятся битовыми масками по номеру коммита в {@code commitIds}
+     * и при нехватке {@link HeapBudget} уходят во временный файл.
+     */
+    public List<Set<String>> findBranches(List<? extends ObjectId> commitIds) throws IOException, GitAPIException {
         // TODO: не всегда определяется ветка
-        Map<ObjectId, CommitChangesStat> commitIdToChangesStatData = commitChangesStatList.stream()
-                .collect(Collectors.toMap(CommitChangesStat::getCommitId, Function.identity()));
+        Map<ObjectId, Integer> commitIndexes = new HashMap<>(commitIds.size() * 2);
+        for (int i = 0; i < commitIds.size(); i++) {
+            commitIndexes.put(commitIds.get(i), i);
+        }
         // тут собираем все коммиты являющиеся головами веток
-        Map<ObjectId, List<String>> heads = repository.getRefDatabase().getRefsByPrefix("refs/heads/").stream()
-                .map(ref -> Map.entry(ref.getObjectId(), ref.getName().replace("refs/heads/", "")))
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> Collections.singletonList(e.getValue()), (a, b) -> {
-                    List<String> result = new ArrayList<>(a.size() + b.size());
-                    result.addAll(a);
-                    result.addAll(b);
-                    return result;
-                }));
-
-        // заполняем коммиты хранящиеся в каждой ветке
-        Map<String, Set<ObjectId>> branchToCommits = new HashMap<>();
-        try (Git git = new Git(repository)) {
+        Map<Integer, List<String>> heads = new HashMap<>();
+        for (Ref ref : repository.getRefDatabase().getRefsByPrefix("refs/heads/")) {
+            Integer index = commitIndexes.get(ref.getObjectId());
+            if (index != null) {
+                heads.computeIfAbsent(index, k -> new ArrayList<>()).add(ref.getName().replace("refs/heads/", ""));
+            }
+        }
+
+        try (Git git = new Git(repository); var bitSets = new CommitBitSets(commitIds.size(), heapBudget)) {
+            // заполняем коммиты хранящиеся в каждой ветке
+            Map<String, LongBuffer> branchToCommits = new HashMap<>();
             List<Ref> branches = git.branchList().call();
-            log.info("Found {} branches in repository {}: {}", branches.size(), repoName,
-                    branches.stream().map(Ref::getName).collect(Collectors.toList()));
+            log.info("Found {} branches in repository {}", branches.size(), repoName);
+            if (log.isDebugEnabled()) {
+                log.debug("Branches in repository {}: {}", repoName,
+                        branches.stream().map(Ref::getName).collect(Collectors.toList()));
+            }
+            // коммиты ветки сначала собираются в общую маску, своя выделяется только если они нашлись
+            LongBuffer scratch = bitSets.allocate();
             for (Ref branch : branches) {
                 RevCommit latestCommitOnBranch = repository.parseCommit(branch.getObjectId());
                 Iterable<RevCommit> commits = git.log().add(latestCommitOnBranch).call();
+                boolean found = false;
                 for (RevCommit c : commits) {
                     // TODO: тут тоже бы не проходить все коммиты, а ориентироваться
                     //  на какой-то интервал или пограничные коммиты
-                    CommitChangesStat commitChangesStat = commitIdToChangesStatData.get(c.getId());
-                    if (commitChangesStat != null) {
-                        String shortName = branch.getName().replace("refs/heads/", "");
-                        branchToCommits.computeIfAbsent(shortName, k -> new HashSet<>()).add(c.getId());
+                    Integer index = commitIndexes.get(c);
+                    if (index != null) {
+                        CommitBitSets.set(scratch, index);
+                        found = true;
                     }
                 }
+                if (found) {
+                    branchToCommits.put(branch.getName().replace("refs/heads/", ""), bitSets.copy(scratch));
+                    CommitBitSets.clear(scratch);
+                }
             }
-        }
+            bitSets.release(scratch);
 
-        // если ветка содержит коммит из heads, значит далее надо игнорировать все коммиты той ветки в рамках более общей
-        removeInnerBranches(branchToCommits, heads);
+            // если ветка содержит коммит из heads, значит далее надо игнорировать все коммиты той ветки в рамках более общей
+            removeInnerBranches(bitSets, branchToCommits, heads);
 
-        // непосредственно заполнение веток в commitIdToChangesStatData
-        for (var entry : branchToCommits.entrySet()) {
-            String branchName = entry.getKey();
-            Set<ObjectId> commits = entry.getValue();
-            for (ObjectId commitId : commits) {
-                CommitChangesStat commitChangesStat = commitIdToChangesStatData.get(commitId);
-                if (commitChangesStat != null) {
-                    commitChangesStat.getBranches().add(branchName);
+            // непосредственно заполнение веток, одинаковые множества веток переиспользуются
+            List<Set<String>> branchSets = new ArrayList<>(List.of(Set.of()));
+            Map<Set<String>, Integer> branchSetIds = new HashMap<>(Map.of(Set.of(), 0));
+            int[] commitBranchSets = new int[commitIds.size()];
+            for (var entry : branchToCommits.entrySet()) {
+                String branchName = entry.getKey();
+                LongBuffer commits = entry.getValue();
+                // номер множества без ветки -> номер множества с веткой
+                Map<Integer, Integer> withBranch = new HashMap<>();
+                for (int i = CommitBitSets.nextSetBit(commits, 0); i >= 0; i = CommitBitSets.nextSetBit(commits, i + 1)) {
+                    commitBranchSets[i] = withBranch.computeIfAbsent(commitBranchSets[i], id -> {
+                        var set = new HashSet<>(branchSets.get(id));
+                        set.add(branchName);
+                        return branchSetIds.computeIfAbsent(Set.copyOf(set), s -> {
+                            branchSets.add(s);
+                            return branchSets.size() - 1;
+                        });
+                    });
                 }
             }
-        }
 
-        for (CommitChangesStat commitChangesStat : commitChangesStatList) {
-            log.warn("Commit {} has no branches ({})", commitChangesStat.getCommitId(), repoName);
+            List<Set<String>> result = new ArrayList<>(commitIds.size());
+            var withoutBranches = new LogSampler(log);
+            for (int i = 0; i < commitIds.size(); i++) {
+                if (commitBranchSets[i] == 0) {
+                    withoutBranches.warn("Commit {} has no branches ({})", commitIds.get(i).toObjectId(), repoName);
+                }
+                result.add(branchSets.get(commitBranchSets[i]));
+            }
+            withoutBranches.warnSkipped("{} more commits have no branches ({})", repoName);
+            return result;
         }
     }
 
-    private void removeInnerBranches(Map<String, Set<ObjectId>> branchToCommits, Map<ObjectId, List<String>> heads) {
+    private void removeInnerBranches(CommitBitSets bitSets, Map<String, LongBuffer> branchToCommits,
+                                     Map<Integer, List<String>> heads) throws IOException {
         for (var entry : branchToCommits.entrySet()) {
             String branchName = entry.getKey();
-            Set<ObjectId> commits = entry.getValue();
-            Set<ObjectId> updatedCommits = new HashSet<>(commits);
-            for (ObjectId commitId : commits) {
-                var branches = heads.getOrDefault(commitId, Collections.emptyList());
-                if (!branches.contains(branchName)) {
+            LongBuffer commits = entry.getValue();
+            LongBuffer updatedCommits = commits;
+            for (var head : heads.entrySet()) {
+                var branches = head.getValue();
+                if (CommitBitSets.get(commits, head.getKey()) && !branches.contains(branchName)) {
                     for (var b : branches) {
-                        // удаляем все коммиты ветки {b} из {branchName}
-                        updatedCommits.removeAll(branchToCommits.getOrDefault(b, Collections.emptySet()));
+                        LongBuffer innerCommits = branchToCommits.get(b);
+                        if (innerCommits != null) {
+                            if (updatedCommits == commits) {
+                                updatedCommits = bitSets.copy(commits);
+                            }
+                            // удаляем все коммиты ветки {b} из {branchName}
+                            CommitBitSets.andNot(updatedCommits, innerCommits);
+                        }
                     }
                 }
             }
-            branchToCommits.put(branchName, updatedCommits);
+            if (updatedCommits != commits) {
+                entry.setValue(updatedCommits);
+                bitSets.release(commits);
+            }
         }
     }
 
@@ -0,0 +1,58 @@
+package ru.protei.logging;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Предупреждения о массовых событиях: логируются только первые {@link #limit}, остальные считаются
+ * и выводятся одной строкой в {@link #warnSkipped}. Можно использовать из нескольких потоков.
+ */
+public class LogSampler {
+    public static final int DEFAULT_LIMIT = 10;
+
+    private final Logger log;
+    private final int limit;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public LogSampler(Logger log) {
+        this(log, DEFAULT_LIMIT);
+    }
+
+    public LogSampler(Logger log, int limit) {
+        this.log = log;
+        this.limit = limit;
+    }
+
+    public void warn(String format, Object arg) {
+        if (count.getAndIncrement() < limit && log.isWarnEnabled()) {
+            log.warn(format, arg);
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (count.getAndIncrement() < limit && log.isWarnEnabled()) {
+            log.warn(format, arg1, arg2);
+        }
+    }
+
+    /**
+     * Сколько событий не попало в лог.
+     */
+    public int getSkipped() {
+        return Math.max(0, count.get() - limit);
+    }
+
+    /**
+     * Одна строка о пропущенных событиях, если такие были; первым аргументом {@code format} идет их число.
+     */
+    public void warnSkipped(String format, Object... args) {
+        int skipped = getSkipped();
+        if (skipped > 0 && log.isWarnEnabled()) {
+            Object[] arguments = new Object[args.length + 1];
+            arguments[0] = skipped;
+            System.arraycopy(args, 0, arguments, 1, args.length);
+            log.warn(format, arguments);
+        }
+    }
+}
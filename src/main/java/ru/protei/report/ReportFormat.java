@@ -0,0 +1,7 @@
+package ru.protei.report;
+
+public enum ReportFormat {
+    TEXT,
+    CSV,
+    JSON
+}
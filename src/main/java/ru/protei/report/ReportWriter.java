@@ -0,0 +1,157 @@
+package ru.protei.report;
+
+import lombok.NonNull;
+import ru.protei.analytics.DailyActivity;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Построчная запись результата анализа: каждый день пишется сразу, весь отчет в памяти не собирается.
+ */
+public class ReportWriter implements Closeable {
+    private final Writer out;
+    private final ReportFormat format;
+    private final boolean closeOut;
+    private boolean first = true;
+
+    public ReportWriter(@NonNull Writer out, @NonNull ReportFormat format) {
+        this(out, format, true);
+    }
+
+    private ReportWriter(Writer out, ReportFormat format, boolean closeOut) {
+        this.out = out;
+        this.format = format;
+        this.closeOut = closeOut;
+    }
+
+    /**
+     * @param file файл отчета, null - вывод в stdout (логи в терминал идут в stderr и в отчет не попадают)
+     */
+    public static ReportWriter open(Path file, @NonNull ReportFormat format) throws IOException {
+        if (file == null) {
+            return new ReportWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)),
+                    format, false);
+        }
+        return new ReportWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), format, true);
+    }
+
+    public void write(DailyActivity dailyActivity) throws IOException {
+        // ветки по имени, чтобы отчет не зависел от порядка в HashMap
+        Map<String, String> hours = new TreeMap<>(dailyActivity.getTimeActivityPerBranch());
+        switch (format) {
+            case TEXT -> writeText(dailyActivity, hours);
+            case CSV -> writeCsv(dailyActivity, hours);
+            case JSON -> writeJson(dailyActivity, hours);
+        }
+        first = false;
+    }
+
+    private void writeText(DailyActivity dailyActivity, Map<String, String> hours) throws IOException {
+        out.write(String.valueOf(dailyActivity.getDate()));
+        out.write(": ");
+        out.write(Integer.toString(dailyActivity.getTotalScore()));
+        out.write(" total score, ");
+        out.write(hours.toString());
+        out.write('\n');
+    }
+
+    private void writeCsv(DailyActivity dailyActivity, Map<String, String> hours) throws IOException {
+        if (first) {
+            writeCsvHeader();
+        }
+        if (hours.isEmpty()) {
+            // день без веток тоже попадает в отчет, как и в остальных форматах
+            writeCsvRow(dailyActivity, "", "");
+        }
+        for (var entry : hours.entrySet()) {
+            writeCsvRow(dailyActivity, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void writeCsvHeader() throws IOException {
+        out.write("date,total_score,branch,hours\n");
+    }
+
+    private void writeCsvRow(DailyActivity dailyActivity, String branch, String hours) throws IOException {
+        out.write(String.valueOf(dailyActivity.getDate()));
+        out.write(',');
+        out.write(Integer.toString(dailyActivity.getTotalScore()));
+        out.write(',');
+        writeCsvValue(branch);
+        out.write(',');
+        writeCsvValue(hours);
+        out.write('\n');
+    }
+
+    private void writeJson(DailyActivity dailyActivity, Map<String, String> hours) throws IOException {
+        out.write(first ? "[\n" : ",\n");
+        out.write("  {\"date\": ");
+        writeJsonString(String.valueOf(dailyActivity.getDate()));
+        out.write(", \"totalScore\": ");
+        out.write(Integer.toString(dailyActivity.getTotalScore()));
+        out.write(", \"hours\": {");
+        boolean firstBranch = true;
+        for (var entry : hours.entrySet()) {
+            if (!firstBranch) {
+                out.write(", ");
+            }
+            writeJsonString(entry.getKey());
+            out.write(": ");
+            writeJsonString(entry.getValue());
+            firstBranch = false;
+        }
+        out.write("}}");
+    }
+
+    private void writeCsvValue(String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (format == ReportFormat.JSON) {
+            out.write(first ? "[]\n" : "\n]\n");
+        } else if (format == ReportFormat.CSV && first) {
+            // пустой отчет тоже со строкой заголовков, как [] в JSON
+            writeCsvHeader();
+        }
+        if (closeOut) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+}
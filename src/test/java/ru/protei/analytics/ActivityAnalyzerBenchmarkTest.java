@@ -0,0 +1,37 @@
+package ru.protei.analytics;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Пропускная способность {@link ActivityAnalyzer#analyze()}, по умолчанию не запускается:
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups=}
+ */
+@Tag("benchmark")
+class ActivityAnalyzerBenchmarkTest {
+    private static final int COMMITS = 3_000_000;
+    private static final int DAYS = 59;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    @Test
+    void analyzeThroughput() {
+        var analyzer = new ActivityAnalyzer(
+                new CombinatedChangesStat(ActivityAnalyzerTest.syntheticChanges(COMMITS, DAYS)));
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            analyzer.analyze();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            var analyzed = analyzer.analyze();
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(DAYS, analyzed.size());
+        }
+        System.out.printf("ActivityAnalyzer.analyze: %d commits in %.1f ms, %.0f commits/s%n",
+                COMMITS, best / 1e6, COMMITS / (best / 1e9));
+    }
+}
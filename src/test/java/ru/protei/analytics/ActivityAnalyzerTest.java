@@ -0,0 +1,94 @@
+package ru.protei.analytics;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import ru.protei.git.CommitChangesStat;
+import ru.protei.logging.LogSampler;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityAnalyzerTest {
+    private static final LocalDate FROM = LocalDate.of(2023, 8, 1);
+
+    @Test
+    void analyze() {
+        var changes = new CombinatedChangesStat(List.of(
+                commit(0, 10, Set.of("master")),
+                commit(0, 20, Set.of("master", "feature")),
+                commit(1, 5, Set.of("develop", "feature")),
+                commit(1, 7, Set.of()),
+                commit(3, 1, Set.of("develop"))));
+
+        var analyzed = new ActivityAnalyzer(changes).analyze();
+        assertEquals(3, analyzed.size());
+        assertEquals(FROM, analyzed.get(0).getDate());
+        assertEquals(10, analyzed.get(0).getActivity("master"));
+        assertEquals(20, analyzed.get(0).getActivity("feature"));
+        assertEquals(12, analyzed.get(1).getActivity("unknown"));
+        assertEquals(0, analyzed.get(2).getTotalScore());
+    }
+
+    @Test
+    void analyzeInParallelAsSequential() {
+        // взаимно просто с числом вариантов веток, чтобы в каждый день попали все варианты
+        int days = 29;
+        var changes = new CombinatedChangesStat(syntheticChanges(ActivityAnalyzer.PARALLEL_THRESHOLD * 2 + 1, days));
+
+        var analyzed = new ActivityAnalyzer(changes).analyze();
+        var expected = ActivityAnalyzer.bucketByDay(changes.getChangesStats(), FROM, FROM.plusDays(days),
+                new LogSampler(LoggerFactory.getLogger(ActivityAnalyzerTest.class)));
+        assertEquals(expected.length, analyzed.size());
+        for (int day = 0; day < expected.length; day++) {
+            var actual = analyzed.get(day);
+            assertEquals(expected[day].getDate(), actual.getDate());
+            assertEquals(expected[day].getTotalScore(), actual.getTotalScore());
+            assertEquals(expected[day].getBranches(), actual.getBranches());
+            for (String branch : expected[day].getBranches()) {
+                assertEquals(expected[day].getActivity(branch), actual.getActivity(branch));
+            }
+            assertEquals(expected[day].getTimeActivityPerBranch(), actual.getTimeActivityPerBranch());
+        }
+        assertTrue(analyzed.get(0).getActivity("feature0") > 0);
+        assertTrue(analyzed.get(0).getActivity("unknown") > 0);
+        assertEquals(0, analyzed.get(0).getActivity("master"));
+    }
+
+    /**
+     * Изменения по {@code days} дням с ветками вида {master, featureN}, {develop}, {} и {master, develop, featureN}.
+     * Последнее изменение приходится на день {@code days} и задает границу окна анализа.
+     */
+    static List<ChangesStat> syntheticChanges(int count, int days) {
+        List<ZonedDateTime> times = new ArrayList<>();
+        for (int day = 0; day <= days; day++) {
+            times.add(FROM.plusDays(day).atStartOfDay(ZoneId.systemDefault()).plusHours(12));
+        }
+        List<Set<String>> branchSets = new ArrayList<>();
+        for (int feature = 0; feature < 3; feature++) {
+            branchSets.add(Set.of("master", "feature" + feature));
+        }
+        branchSets.add(Set.of("develop"));
+        branchSets.add(Set.of());
+        branchSets.add(Set.of("master", "develop", "feature0"));
+
+        List<ChangesStat> changes = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            changes.add(new CommitChangesStat(times.get(i % days), 1 + i % 7, Set.of(), Set.of(),
+                    branchSets.get(i % branchSets.size()), ObjectId.zeroId()));
+        }
+        changes.add(new CommitChangesStat(times.get(days), 1, Set.of(), Set.of(), Set.of(), ObjectId.zeroId()));
+        return changes;
+    }
+
+    private static ChangesStat commit(int day, int linesChanged, Set<String> branches) {
+        var time = FROM.plusDays(day).atStartOfDay(ZoneId.systemDefault()).plusHours(12);
+        return new CommitChangesStat(time, linesChanged, Set.of(), Set.of(), branches, ObjectId.zeroId());
+    }
+}
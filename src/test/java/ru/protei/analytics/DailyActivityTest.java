@@ -2,6 +2,8 @@ package ru.protei.analytics;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class DailyActivityTest {
@@ -20,4 +22,59 @@ class DailyActivityTest {
         assertEquals("4h", timeActivityPerBranch.get("develop"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void getTimeActivityPerBranchAfterChanges() {
+        var dailyActivity = new DailyActivity(null);
+        dailyActivity.addActivity("master", 10);
+        assertEquals("8h", dailyActivity.getTimeActivityPerBranch().get("master"));
+
+        dailyActivity.addActivity("feature1", 1);
+        dailyActivity.addActivity("feature2", 1);
+        dailyActivity.addActivity("feature3", 1);
+
+        var timeActivityPerBranch = dailyActivity.getTimeActivityPerBranch();
+        assertEquals(4, timeActivityPerBranch.size());
+        assertEquals("5h", timeActivityPerBranch.get("master"));
+        assertEquals("1h", timeActivityPerBranch.get("feature1"));
+        assertEquals("1h", timeActivityPerBranch.get("feature2"));
+        assertEquals("1h", timeActivityPerBranch.get("feature3"));
+    }
+
+    @Test
+    void getTimeActivityPerBranchWithoutChangedLines() {
+        var dailyActivity = new DailyActivity(null);
+        dailyActivity.addActivity("master", 0);
+        assertEquals("8h", dailyActivity.getTimeActivityPerBranch().get("master"));
+
+        dailyActivity.addActivity("feature", 0);
+
+        var timeActivityPerBranch = dailyActivity.getTimeActivityPerBranch();
+        assertEquals(2, timeActivityPerBranch.size());
+        assertEquals("4h", timeActivityPerBranch.get("master"));
+        assertEquals("4h", timeActivityPerBranch.get("feature"));
+    }
+
+    @Test
+    void stealActivityKeepsBranchOrder() {
+        var dailyActivity = new DailyActivity(null);
+        var previous = new DailyActivity(null);
+        previous.addActivity("master", 10);
+        previous.addActivity("feature1", 1);
+        previous.addActivity("feature2", 1);
+
+        dailyActivity.stealActivity(previous, 10);
+
+        assertEquals(List.of("feature1", "feature2"), previous.getBranches());
+        assertEquals(10, dailyActivity.getActivity("master"));
+    }
+
+    @Test
+    void getActivityOfUnknownBranch() {
+        var dailyActivity = new DailyActivity(null);
+        dailyActivity.addActivity("master", 10);
+
+        assertEquals(0, dailyActivity.getActivity("never-added-branch"));
+        assertEquals(-1, BranchIds.find("never-added-branch"));
+    }
+
+}
@@ -0,0 +1,81 @@
+package ru.protei.git;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitBitSetsTest {
+
+    @Test
+    void setAndNextSetBitAcrossWords() throws IOException {
+        try (var bitSets = new CommitBitSets(130, HeapBudget.UNLIMITED)) {
+            LongBuffer bits = bitSets.allocate();
+            assertEquals(3, bits.capacity());
+            assertEquals(-1, CommitBitSets.nextSetBit(bits, 0));
+
+            CommitBitSets.set(bits, 0);
+            CommitBitSets.set(bits, 63);
+            CommitBitSets.set(bits, 64);
+            CommitBitSets.set(bits, 129);
+
+            assertTrue(CommitBitSets.get(bits, 63));
+            assertTrue(CommitBitSets.get(bits, 64));
+            assertFalse(CommitBitSets.get(bits, 62));
+            assertFalse(CommitBitSets.get(bits, 65));
+            assertEquals(0, CommitBitSets.nextSetBit(bits, 0));
+            assertEquals(63, CommitBitSets.nextSetBit(bits, 1));
+            assertEquals(64, CommitBitSets.nextSetBit(bits, 64));
+            assertEquals(129, CommitBitSets.nextSetBit(bits, 65));
+            assertEquals(-1, CommitBitSets.nextSetBit(bits, 130));
+        }
+    }
+
+    @Test
+    void andNot() throws IOException {
+        try (var bitSets = new CommitBitSets(128, HeapBudget.UNLIMITED)) {
+            LongBuffer bits = bitSets.allocate();
+            LongBuffer other = bitSets.allocate();
+            CommitBitSets.set(bits, 1);
+            CommitBitSets.set(bits, 63);
+            CommitBitSets.set(bits, 100);
+            CommitBitSets.set(other, 63);
+            CommitBitSets.set(other, 100);
+            CommitBitSets.set(other, 101);
+
+            LongBuffer copy = bitSets.copy(bits);
+            CommitBitSets.andNot(copy, other);
+
+            assertEquals(1, CommitBitSets.nextSetBit(copy, 0));
+            assertEquals(-1, CommitBitSets.nextSetBit(copy, 2));
+            assertTrue(CommitBitSets.get(bits, 100));
+        }
+    }
+
+    @Test
+    void spillsPastHeapBudget() throws IOException {
+        var heapBudget = new HeapBudget(1);
+        try (var bitSets = new CommitBitSets(200, heapBudget)) {
+            LongBuffer bits = bitSets.allocate();
+            assertTrue(bits.isDirect());
+            assertEquals(4 * Long.BYTES, bitSets.getSpillSize());
+
+            CommitBitSets.set(bits, 63);
+            CommitBitSets.set(bits, 64);
+            CommitBitSets.set(bits, 199);
+            LongBuffer copy = bitSets.copy(bits);
+            assertEquals(63, CommitBitSets.nextSetBit(copy, 0));
+            assertEquals(64, CommitBitSets.nextSetBit(copy, 64));
+            assertEquals(199, CommitBitSets.nextSetBit(copy, 65));
+
+            // освобожденная область переиспользуется и приходит очищенной
+            bitSets.release(bits);
+            LongBuffer reused = bitSets.allocate();
+            assertEquals(8 * Long.BYTES, bitSets.getSpillSize());
+            assertEquals(-1, CommitBitSets.nextSetBit(reused, 0));
+        }
+        assertEquals("0/1 bytes", heapBudget.toString());
+    }
+}
@@ -0,0 +1,63 @@
+package ru.protei.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import ru.protei.analytics.ChangesStat;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitStatsStoreTest {
+    private static final ZonedDateTime TIME = ZonedDateTime.of(2023, 8, 1, 12, 0, 0, 0, ZoneId.systemDefault());
+
+    @Test
+    void spillsPastHeapBudget() throws IOException {
+        var heapBudget = new HeapBudget(10_000);
+        try (var store = new CommitStatsStore(heapBudget)) {
+            var expected = new ArrayList<CommitChangesStat>();
+            for (int i = 0; i < 30_000; i++) {
+                var stat = commit(i);
+                expected.add(stat);
+                store.add(stat);
+            }
+
+            assertEquals(expected.size(), store.size());
+            int index = 0;
+            for (ChangesStat stat : store) {
+                assertStatEquals(expected.get(index++), stat);
+            }
+            assertStatEquals(expected.get(29_999), store.get(29_999));
+            assertEquals(expected.size(), store.stream().count());
+
+            List<ChangesStat> subList = store.subList(5_000, 5_010);
+            assertEquals(10, subList.size());
+            index = 5_000;
+            for (ChangesStat stat : subList) {
+                assertStatEquals(expected.get(index++), stat);
+            }
+        }
+        assertEquals("0/10000 bytes", heapBudget.toString());
+    }
+
+    private static CommitChangesStat commit(int i) {
+        return new CommitChangesStat(TIME.plusMinutes(i), i, Set.of("src/File" + i + ".java", "файл.txt"),
+                Set.of("andrey"), Set.of(i % 2 == 0 ? "master" : "develop"),
+                ObjectId.fromString(String.format("%040x", i)));
+    }
+
+    private static void assertStatEquals(CommitChangesStat expected, ChangesStat actual) {
+        var stat = (CommitChangesStat) actual;
+        assertEquals(expected.getTime(), stat.getTime());
+        assertEquals(expected.getLinesChanged(), stat.getLinesChanged());
+        assertEquals(expected.getChangedFiles(), stat.getChangedFiles());
+        assertEquals(expected.getAuthors(), stat.getAuthors());
+        assertEquals(expected.getBranches(), stat.getBranches());
+        assertEquals(expected.getCommitId(), stat.getCommitId());
+    }
+}
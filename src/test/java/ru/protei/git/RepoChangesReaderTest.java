@@ -0,0 +1,80 @@
+package ru.protei.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepoChangesReaderTest {
+    private static final String REPO_NAME = "demo";
+
+    @TempDir
+    Path repositoriesRoot;
+
+    private RevCommit master1, master2, master3, master4, feature1, feature2, sub;
+
+    /**
+     * master: m1 - m2 - m3 - m4, feature ответвляется от m3: f1 - f2, sub от f2: s.
+     * Ветка old указывает на m1, который в анализ не попадает.
+     */
+    @BeforeEach
+    void createRepository() throws Exception {
+        Path repoPath = repositoriesRoot.resolve(REPO_NAME);
+        try (Git git = Git.init().setDirectory(repoPath.toFile()).setInitialBranch("master").call()) {
+            master1 = commit(git, repoPath, "m1");
+            master2 = commit(git, repoPath, "m2");
+            master3 = commit(git, repoPath, "m3");
+            git.branchCreate().setName("old").setStartPoint(master1).call();
+            git.checkout().setCreateBranch(true).setName("feature").call();
+            feature1 = commit(git, repoPath, "f1");
+            feature2 = commit(git, repoPath, "f2");
+            git.checkout().setCreateBranch(true).setName("sub").call();
+            sub = commit(git, repoPath, "s");
+            git.checkout().setName("master").call();
+            master4 = commit(git, repoPath, "m4");
+        }
+    }
+
+    @Test
+    void findBranches() throws Exception {
+        assertBranches(HeapBudget.UNLIMITED);
+    }
+
+    @Test
+    void findBranchesWithSpilling() throws Exception {
+        assertBranches(new HeapBudget(1));
+    }
+
+    // то же, что давал fillBranches до перехода на битовые маски
+    private void assertBranches(HeapBudget heapBudget) throws Exception {
+        var reader = new RepoChangesReader(REPO_NAME, repositoriesRoot);
+        reader.setHeapBudget(heapBudget);
+        var commits = List.of(master2, master3, master4, feature1, feature2, sub);
+
+        var branches = reader.findBranches(commits);
+
+        assertEquals(List.of(
+                Set.of("master", "feature"),
+                Set.of("master", "feature"),
+                Set.of("master"),
+                Set.of("feature"),
+                Set.of("feature"),
+                Set.of("sub")), branches);
+    }
+
+    private static RevCommit commit(Git git, Path repoPath, String name) throws Exception {
+        Files.writeString(repoPath.resolve(name + ".txt"), name);
+        git.add().addFilepattern(name + ".txt").call();
+        var author = new PersonIdent("andrey", "andrey@example.com");
+        return git.commit().setMessage(name).setAuthor(author).setCommitter(author).call();
+    }
+}
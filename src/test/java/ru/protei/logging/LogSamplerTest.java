@@ -0,0 +1,27 @@
+package ru.protei.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSamplerTest {
+
+    @Test
+    void countsSkippedAcrossThreads() {
+        var sampler = new LogSampler(LoggerFactory.getLogger(LogSamplerTest.class), 3);
+        IntStream.range(0, 1000).parallel().forEach(i -> sampler.warn("Event {}", i));
+
+        assertEquals(997, sampler.getSkipped());
+    }
+
+    @Test
+    void nothingSkippedUnderLimit() {
+        var sampler = new LogSampler(LoggerFactory.getLogger(LogSamplerTest.class), 3);
+        sampler.warn("Event {} of {}", 1, 2);
+
+        assertEquals(0, sampler.getSkipped());
+    }
+}
@@ -0,0 +1,72 @@
+package ru.protei.report;
+
+import org.junit.jupiter.api.Test;
+import ru.protei.analytics.DailyActivity;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportWriterTest {
+
+    @Test
+    void writeText() throws IOException {
+        assertEquals("""
+                2023-08-01: 31 total score, {develop=4h, master=3h, master2=1h}
+                2023-08-02: 0 total score, {}
+                """, write(ReportFormat.TEXT));
+    }
+
+    @Test
+    void writeCsv() throws IOException {
+        assertEquals("""
+                date,total_score,branch,hours
+                2023-08-01,31,develop,4h
+                2023-08-01,31,master,3h
+                2023-08-01,31,master2,1h
+                2023-08-02,0,,
+                """, write(ReportFormat.CSV));
+    }
+
+    @Test
+    void writeJson() throws IOException {
+        assertEquals("""
+                [
+                  {"date": "2023-08-01", "totalScore": 31, "hours": {"develop": "4h", "master": "3h", "master2": "1h"}},
+                  {"date": "2023-08-02", "totalScore": 0, "hours": {}}
+                ]
+                """, write(ReportFormat.JSON));
+    }
+
+    @Test
+    void writeEmpty() throws IOException {
+        assertEquals("", writeEmpty(ReportFormat.TEXT));
+        assertEquals("date,total_score,branch,hours\n", writeEmpty(ReportFormat.CSV));
+        assertEquals("[]\n", writeEmpty(ReportFormat.JSON));
+    }
+
+    private static String writeEmpty(ReportFormat format) throws IOException {
+        var out = new StringWriter();
+        new ReportWriter(out, format).close();
+        return out.toString();
+    }
+
+    private static String write(ReportFormat format) throws IOException {
+        var first = new DailyActivity(LocalDate.of(2023, 8, 1));
+        first.addActivity("master", 10);
+        first.addActivity("master2", 1);
+        first.addActivity("develop", 20);
+        var second = new DailyActivity(LocalDate.of(2023, 8, 2));
+
+        var out = new StringWriter();
+        try (var reportWriter = new ReportWriter(out, format)) {
+            for (var dailyActivity : List.of(first, second)) {
+                reportWriter.write(dailyActivity);
+            }
+        }
+        return out.toString();
+    }
+}